@@ -1,50 +1,45 @@
 
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.geom.Ellipse2D;
+import java.util.Random;
 
 /**
- * A class representing a ball in the simulation.
+ * A class representing a ball in the simulation. Properties shared by all
+ * balls of a kind (density, colour, ...) are stored in a ParticleTypeTable,
+ * so each ball only keeps what changes from ball to ball.
  * 
  * @version 1.0
  * @author Sunny Jiao
  */
-@SuppressWarnings("serial")
-public class Ball extends Ellipse2D.Double {
+public class Ball {
 
-    private static final int MIN_RADIUS = 8;
-    private static final int MAX_RADIUS = 15;
+    public final int id;
+    public final byte type;
     public int radius;
-    public int mass;
+    public double x, y;
+    public double startX, startY; // position at the start of the current step
     public double vx, vy;
-    public Color color;
+    public QuadTree owner; // the one tree that counts this ball (see QuadTree.addBall)
 
     /**
-     * Creates a ball and assigns it various random attributes.
-     */
-    public Ball(){
-        super();
-        this.vx = Math.random() * 1 - 0.5;
-        this.vy = Math.random() * 1 - 0.5;
-        this.radius = (int)(Math.random() * (MAX_RADIUS - MIN_RADIUS + 1) + MIN_RADIUS);
-        this.x = (int)(Math.random() * ((1024 - this.radius) - (this.radius) + 1) + this.radius);
-        this.y = (int)(Math.random() * ((1024 - this.radius) - (this.radius) + 1) + this.radius);
-        this.width = radius * 2;
-        this.height = radius * 2;
-        this.mass = radius;
-        this.color = new Color((int)(Math.random() * 255),
-                                (int)(Math.random() * 255),
-                                (int)(Math.random() * 255));
-    }
-    
-    /**
-     * Draws the ball to a graphics object.
+     * Creates a ball of a type and assigns it various random attributes. The
+     * attributes only depend on the random number generator, so a seeded
+     * generator will always create the same ball.
      * 
-     * @param g Graphics object to draw to
+     * @param id Unique number of the ball, used to order collisions
+     * @param type Id of the ball's type
+     * @param types Table containing the type
+     * @param random Random number generator to pick the attributes with
+     * @param worldSize Width and height of the area to place the ball in
      */
-    public void draw(Graphics g){
-        g.setColor(color);
-        g.fillOval((int)x - radius, (int)y - radius, radius * 2, radius * 2);
+    public Ball(int id, byte type, ParticleTypeTable types, Random random, int worldSize){
+        this.id = id;
+        this.type = type;
+        this.vx = random.nextDouble() * 1 - 0.5;
+        this.vy = random.nextDouble() * 1 - 0.5;
+        this.radius = types.get(type).randomRadius(random);
+        this.x = (int)(random.nextDouble() * ((worldSize - this.radius) - (this.radius) + 1) + this.radius);
+        this.y = (int)(random.nextDouble() * ((worldSize - this.radius) - (this.radius) + 1) + this.radius);
+        this.startX = x;
+        this.startY = y;
     }
 
     /**
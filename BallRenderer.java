@@ -0,0 +1,219 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Renders the simulation into a reused BufferedImage. Balls are rasterized
+ * straight into the image's pixel array using pre-computed sprites, rather than
+ * going through a Graphics object once per ball.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class BallRenderer {
+
+    public static final double LOD_RADIUS = 1.5; // balls smaller than this (in pixels) are drawn as points
+    public static final double MIN_ZOOM = 0.25;
+    public static final double MAX_ZOOM = 64;
+    public static final double PAN_STEP = 0.1; // fraction of the visible area moved by one pan
+    private static final int BACKGROUND = 0xEEEEEE;
+    private static final Color TREE_COLOR = Color.BLUE;
+    private static final Color OBSTACLE_COLOR = Color.DARK_GRAY;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private int width, height;
+    private int[][] sprites; // half-width of each row of a circle, indexed by radius in pixels
+    private int worldSize;
+    private double zoom;
+    private double viewX, viewY; // point of the world shown in the middle of the image
+    private boolean levelOfDetail;
+    private boolean treeVisible;
+
+    /**
+     * Creates a renderer for a square world.
+     *
+     * @param worldSize Width and height of the simulated area
+     */
+    public BallRenderer(int worldSize) {
+        this.worldSize = worldSize;
+        this.sprites = new int[0][];
+        this.zoom = 1;
+        this.viewX = worldSize / 2.0;
+        this.viewY = worldSize / 2.0;
+        this.levelOfDetail = true;
+        this.treeVisible = true;
+    }
+
+    /**
+     * Draws the balls, obstacles and optionally the QuadTree into the image.
+     *
+     * @param simulation Simulation to draw
+     * @param width Width of the area to draw in
+     * @param height Height of the area to draw in
+     * @return Image containing the rendered frame
+     */
+    public BufferedImage render(Simulation simulation, int width, int height) {
+        resize(width, height);
+        Arrays.fill(pixels, BACKGROUND);
+
+        ParticleTypeTable types = simulation.getTypes();
+        double scale = getScale();
+        double offsetX = width / 2.0 - viewX * scale;
+        double offsetY = height / 2.0 - viewY * scale;
+        for (Ball ball : simulation.getBallList()) {
+            int cx = (int)Math.floor(ball.x * scale + offsetX);
+            int cy = (int)Math.floor(ball.y * scale + offsetY);
+            double radius = ball.radius * scale;
+            if (levelOfDetail && radius < LOD_RADIUS) {
+                drawPoint(cx, cy, types.getColor(ball));
+            } else {
+                int r = (int)Math.round(radius);
+                // Skip balls that are completely outside of the image
+                if (cx + r >= 0 && cx - r < width && cy + r >= 0 && cy - r < height) {
+                    drawSprite(cx, cy, r, types.getColor(ball));
+                }
+            }
+        }
+
+        Graphics2D g = image.createGraphics();
+        g.translate(offsetX, offsetY);
+        g.scale(scale, scale);
+        g.setColor(OBSTACLE_COLOR);
+        for (Segment segment : simulation.getObstacleList()) {
+            g.draw(segment);
+        }
+        if (treeVisible) {
+            g.setColor(TREE_COLOR);
+            simulation.getRoot().draw(g);
+        }
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Recreates the image if the drawing area changed size.
+     *
+     * @param width New width of the image
+     * @param height New height of the image
+     */
+    private void resize(int width, int height) {
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+        if (image == null || this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    /**
+     * Sets a single pixel, if it lies within the image.
+     *
+     * @param x X coordinate of the pixel
+     * @param y Y coordinate of the pixel
+     * @param rgb Colour of the pixel
+     */
+    private void drawPoint(int x, int y, int rgb) {
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            pixels[y * width + x] = rgb;
+        }
+    }
+
+    /**
+     * Fills a circle by copying the rows of its sprite into the pixel array.
+     * Rows and columns outside the image are clipped before the loop.
+     *
+     * @param cx X coordinate of the centre
+     * @param cy Y coordinate of the centre
+     * @param radius Radius of the circle in pixels
+     * @param rgb Colour of the circle
+     */
+    private void drawSprite(int cx, int cy, int radius, int rgb) {
+        int[] halfWidths = getSprite(radius);
+        int top = cy - radius;
+        int firstRow = Math.max(-top, 0);
+        int lastRow = Math.min(halfWidths.length, height - top);
+        for (int row = firstRow; row < lastRow; row++) {
+            int y = top + row;
+            int start = Math.max(cx - halfWidths[row], 0);
+            int end = Math.min(cx + halfWidths[row], width);
+            int offset = y * width;
+            for (int x = start; x < end; x++) {
+                pixels[offset + x] = rgb;
+            }
+        }
+    }
+
+    /**
+     * Gets the sprite for a radius, rasterizing it the first time it is needed.
+     *
+     * @param radius Radius of the circle in pixels
+     * @return Half-width of each row of the circle, from top to bottom
+     */
+    private int[] getSprite(int radius) {
+        if (radius >= sprites.length) {
+            sprites = Arrays.copyOf(sprites, radius + 1);
+        }
+        if (sprites[radius] == null) {
+            int[] halfWidths = new int[radius * 2];
+            for (int row = 0; row < halfWidths.length; row++) {
+                // Sample the circle through the middle of the row
+                double dy = row + 0.5 - radius;
+                halfWidths[row] = (int)Math.round(Math.sqrt(radius * radius - dy * dy));
+            }
+            sprites[radius] = halfWidths;
+        }
+        return sprites[radius];
+    }
+
+    /**
+     * Gets the number of pixels per unit of the world, fitting the world to
+     * the image and then applying the zoom. The zoom is centred on the middle
+     * of the view.
+     *
+     * @return Scale from world to image coordinates
+     */
+    public double getScale() {
+        return Math.min(width, height) / (double)worldSize * zoom;
+    }
+
+    /**
+     * Multiplies the zoom level by a factor, keeping it between MIN_ZOOM and MAX_ZOOM.
+     *
+     * @param factor Amount to zoom in by (less than 1 zooms out)
+     */
+    public void zoom(double factor) {
+        zoom = Math.max(MIN_ZOOM, Math.min(zoom * factor, MAX_ZOOM));
+    }
+
+    /**
+     * Moves the view by a fraction of the visible area. The middle of the view
+     * stays inside of the world.
+     *
+     * @param dx Steps to move right (negative moves left)
+     * @param dy Steps to move down (negative moves up)
+     */
+    public void pan(int dx, int dy) {
+        double step = worldSize * PAN_STEP / zoom;
+        viewX = Math.max(0, Math.min(viewX + dx * step, worldSize));
+        viewY = Math.max(0, Math.min(viewY + dy * step, worldSize));
+    }
+
+    /**
+     * Toggles drawing of small balls as single points.
+     */
+    public void toggleLevelOfDetail() {
+        levelOfDetail = !levelOfDetail;
+    }
+
+    /**
+     * Toggles drawing of the QuadTree overlay.
+     */
+    public void toggleTree() {
+        treeVisible = !treeVisible;
+    }
+}
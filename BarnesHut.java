@@ -0,0 +1,89 @@
+/**
+ * A force field where every pair of balls attracts (or repels) each other
+ * with an inverse-square force, like gravity or electrostatics. Rather than
+ * comparing every pair, distant groups of balls are approximated by their
+ * centre of mass using the QuadTree (Barnes-Hut), which takes O(N log N).
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class BarnesHut implements ForceField {
+
+    private double theta;
+    private double strength;
+    private double softeningSquared;
+    private long interactions; // pair forces computed in the last step
+
+    /**
+     * Creates a Barnes-Hut force field.
+     * 
+     * @param theta Opening angle. A tree is approximated when its width divided by
+     *              its distance is below this (0 compares every pair exactly)
+     * @param strength Force constant. Positive attracts, negative repels
+     * @param softening Distance added to keep the force finite when balls overlap
+     */
+    public BarnesHut(double theta, double strength, double softening) {
+        this.theta = theta;
+        this.strength = strength;
+        this.softeningSquared = softening * softening;
+    }
+
+    /**
+     * Computes the force on every ball and changes its velocity accordingly.
+     * 
+     * @param simulation Simulation containing the balls
+     */
+    public void apply(Simulation simulation) {
+        QuadTree root = simulation.getRoot();
+        ParticleTypeTable types = simulation.getTypes();
+        double[] acceleration = new double[2];
+        interactions = 0;
+        root.computeMassDistribution(types);
+        for (Ball ball : simulation.getBallList()) {
+            acceleration[0] = 0;
+            acceleration[1] = 0;
+            root.accumulateForce(ball, this, types, acceleration);
+            ball.vx += acceleration[0];
+            ball.vy += acceleration[1];
+        }
+    }
+
+    /**
+     * Adds the acceleration that a mass at a point causes on a ball. This is the
+     * force divided by the ball's own mass, so the ball's mass isn't needed.
+     * 
+     * @param ball Ball the force acts on
+     * @param mass Mass pulling on the ball
+     * @param x X coordinate of the mass
+     * @param y Y coordinate of the mass
+     * @param acceleration Array that the x and y acceleration are added to
+     */
+    public void addAcceleration(Ball ball, double mass, double x, double y, double[] acceleration) {
+        double dx = x - ball.x;
+        double dy = y - ball.y;
+        double distanceSquared = dx * dx + dy * dy + softeningSquared;
+        double magnitude = strength * mass / (distanceSquared * Math.sqrt(distanceSquared));
+        acceleration[0] += magnitude * dx;
+        acceleration[1] += magnitude * dy;
+        interactions++;
+    }
+
+    /**
+     * Gets the opening angle of the approximation.
+     * 
+     * @return Opening angle
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Gets the number of pair forces computed in the last step, to compare
+     * against the N^2 of the exact method.
+     * 
+     * @return Number of interactions
+     */
+    public long getInteractions() {
+        return interactions;
+    }
+}
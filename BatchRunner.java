@@ -0,0 +1,222 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the simulations of a sweep without a display, several at a time, and
+ * writes the metrics of each run to a CSV or JSON lines file as soon as it
+ * finishes. Every run has its own Simulation, so runs don't share any state.
+ * <p>
+ * The simulations run on a fixed pool of platform threads (one per core by
+ * default), since they only compute. Writing the results is done on virtual
+ * threads when the JVM supports them (Java 21+), and on a single background
+ * thread otherwise.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class BatchRunner {
+
+    private PrintWriter output;
+    private boolean json;
+    private int finishedRuns;
+    private int totalRuns;
+    private Map<String, double[]> throughput; // configuration -> {runs, total steps per second}
+
+    /**
+     * Main method. Runs a sweep.
+     *
+     * @param args Command-line arguments: the sweep file, the output file (.csv for
+     *             CSV, anything else for JSON lines) and optionally the number of
+     *             simulations to run at once
+     * @throws IOException If the sweep, scene or output file can't be used
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchRunner <sweep file> <output file> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, got " + threads);
+        }
+        SweepDefinition sweep = SweepDefinition.load(args[0]);
+        SingleLinkedList<Segment> obstacles = sweep.getScene() != null
+                ? SceneLoader.load(sweep.getScene()) : new SingleLinkedList<Segment>();
+
+        try (PrintWriter output = new PrintWriter(new FileWriter(args[1]))) {
+            BatchRunner runner = new BatchRunner(output, !args[1].endsWith(".csv"));
+            long start = System.nanoTime();
+            runner.run(sweep.getRuns(), obstacles, threads);
+            System.out.printf("Finished %d runs in %.1f s%n", runner.totalRuns, (System.nanoTime() - start) / 1e9);
+            runner.printSummary();
+        }
+    }
+
+    /**
+     * Creates a batch runner.
+     *
+     * @param output Writer to stream the results of the runs to
+     * @param json True to write JSON lines, false to write CSV
+     */
+    public BatchRunner(PrintWriter output, boolean json) {
+        this.output = output;
+        this.json = json;
+        this.throughput = new LinkedHashMap<>();
+    }
+
+    /**
+     * Runs simulations and waits for all of them to finish.
+     *
+     * @param runs Parameters of the runs
+     * @param obstacles Static segments shared by every run (only read)
+     * @param threads Number of simulations to run at once
+     */
+    public void run(SingleLinkedList<SweepDefinition.Run> runs, SingleLinkedList<Segment> obstacles, int threads) {
+        totalRuns = runs.size();
+        for (SweepDefinition.Run run : runs) {
+            throughput.putIfAbsent(run.getConfiguration(), new double[2]); // keep the sweep's order
+        }
+        if (!json) {
+            output.println("configuration,balls,threshold,maxDepth,minRadius,maxRadius,seed,steps,"
+                    + "wallMillis,stepsPerSecond,ballStepsPerSecond,simMillis,forceMillis,stateHash");
+        }
+
+        ExecutorService computePool = Executors.newFixedThreadPool(threads);
+        ExecutorService writerPool = newWriterExecutor();
+        try {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[runs.size()];
+            int i = 0;
+            for (SweepDefinition.Run run : runs) {
+                futures[i++] = CompletableFuture.supplyAsync(() -> simulate(run, obstacles), computePool)
+                        .thenAcceptAsync(this::record, writerPool);
+            }
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            computePool.shutdown();
+            writerPool.shutdown();
+        }
+    }
+
+    /**
+     * Creates the executor that results are written on. Virtual threads are
+     * looked up by reflection so that this still compiles on older JDKs.
+     *
+     * @return A virtual thread per task executor, or a single thread executor
+     */
+    private static ExecutorService newWriterExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newSingleThreadExecutor(); // Java 20 and older
+        }
+    }
+
+    /**
+     * Runs one simulation from start to finish.
+     *
+     * @param run Parameters of the run
+     * @param obstacles Static segments in the scene
+     * @return Metrics of the run
+     */
+    private static Result simulate(SweepDefinition.Run run, SingleLinkedList<Segment> obstacles) {
+        ParticleTypeTable types = new ParticleTypeTable(new int[] {0x3366CC});
+        byte type = types.add(new ParticleType(run.minRadius, run.maxRadius, 1, 1, 0, 0));
+        Simulation simulation = new Simulation(run.seed, types, obstacles, run.threshold, run.maxDepth);
+        simulation.addBalls(run.balls, type);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < run.steps; i++) {
+            simulation.step();
+        }
+        double wallMillis = (System.nanoTime() - start) / 1e6;
+        return new Result(run, wallMillis, simulation.getSimTimer().getTotalMillis(),
+                simulation.getForceTimer().getTotalMillis(), simulation.stateHash());
+    }
+
+    /**
+     * Writes the metrics of a finished run and adds them to the summary.
+     * Results can finish on several threads at once, so only one is written at a time.
+     *
+     * @param result Metrics of the run
+     */
+    private synchronized void record(Result result) {
+        SweepDefinition.Run run = result.run;
+        double stepsPerSecond = run.steps / (result.wallMillis / 1000);
+        if (json) {
+            output.printf(Locale.ROOT, "{\"configuration\":\"%s\",\"balls\":%d,\"threshold\":%d,\"maxDepth\":%d,"
+                    + "\"minRadius\":%d,\"maxRadius\":%d,\"seed\":%d,\"steps\":%d,\"wallMillis\":%.3f,"
+                    + "\"stepsPerSecond\":%.3f,\"ballStepsPerSecond\":%.1f,\"simMillis\":%.3f,"
+                    + "\"forceMillis\":%.3f,\"stateHash\":\"%016x\"}%n",
+                    run.getConfiguration(), run.balls, run.threshold, run.maxDepth, run.minRadius,
+                    run.maxRadius, run.seed, run.steps, result.wallMillis, stepsPerSecond,
+                    stepsPerSecond * run.balls, result.simMillis, result.forceMillis, result.stateHash);
+        } else {
+            output.printf(Locale.ROOT, "\"%s\",%d,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.1f,%.3f,%.3f,%016x%n",
+                    run.getConfiguration(), run.balls, run.threshold, run.maxDepth, run.minRadius,
+                    run.maxRadius, run.seed, run.steps, result.wallMillis, stepsPerSecond,
+                    stepsPerSecond * run.balls, result.simMillis, result.forceMillis, result.stateHash);
+        }
+        output.flush();
+        if (output.checkError()) {
+            throw new UncheckedIOException(new IOException("Could not write results"));
+        }
+
+        double[] total = throughput.get(run.getConfiguration());
+        total[0]++;
+        total[1] += stepsPerSecond;
+        finishedRuns++;
+        System.out.printf("[%d/%d] %s seed=%d: %.1f steps/s%n", finishedRuns, totalRuns,
+                run.getConfiguration(), run.seed, stepsPerSecond);
+    }
+
+    /**
+     * Prints the average throughput of each configuration.
+     */
+    public void printSummary() {
+        System.out.println("Average throughput per configuration:");
+        for (Map.Entry<String, double[]> entry : throughput.entrySet()) {
+            double[] total = entry.getValue();
+            System.out.printf("  %-50s %10.1f steps/s (%d runs)%n", entry.getKey(), total[1] / total[0], (int)total[0]);
+        }
+    }
+
+    /**
+     * The metrics of a finished run.
+     *
+     * @version 1.0
+     * @author Sunny Jiao
+     */
+    private static class Result {
+
+        final SweepDefinition.Run run;
+        final double wallMillis;
+        final double simMillis;
+        final double forceMillis;
+        final long stateHash;
+
+        /**
+         * Stores the metrics of a run.
+         *
+         * @param run Parameters of the run
+         * @param wallMillis Time taken by all the steps
+         * @param simMillis Time spent moving balls and resolving collisions
+         * @param forceMillis Time spent applying force fields
+         * @param stateHash Hash of the final state, to check runs against each other
+         */
+        Result(SweepDefinition.Run run, double wallMillis, double simMillis, double forceMillis, long stateHash) {
+            this.run = run;
+            this.wallMillis = wallMillis;
+            this.simMillis = simMillis;
+            this.forceMillis = forceMillis;
+            this.stateHash = stateHash;
+        }
+    }
+}
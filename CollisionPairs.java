@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * A list of pairs of touching balls, stored by ball id. Once sorted, the pairs
+ * are in the same order no matter which leaves found them or in what order,
+ * which keeps collision resolution reproducible.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class CollisionPairs {
+
+    private long[] pairs; // lower id in the high 32 bits, higher id in the low 32 bits
+    private int size;
+
+    /**
+     * Constructs an empty list of pairs.
+     */
+    public CollisionPairs() {
+        pairs = new long[64];
+        size = 0;
+    }
+
+    /**
+     * Adds a pair of balls to the list.
+     * 
+     * @param id1 Id of one ball
+     * @param id2 Id of the other ball
+     */
+    public void add(int id1, int id2) {
+        addOrdered(Math.min(id1, id2), Math.max(id1, id2));
+    }
+
+    /**
+     * Adds a pair to the list without swapping the ids, for pairs of two different
+     * kinds of objects (e.g. a ball and a segment).
+     * 
+     * @param first Id of the first object
+     * @param second Id of the second object
+     */
+    public void addOrdered(int first, int second) {
+        if (size == pairs.length) {
+            pairs = Arrays.copyOf(pairs, size * 2);
+        }
+        pairs[size++] = ((long)first << 32) | second;
+    }
+
+    /**
+     * Sorts the pairs by ids and removes duplicates. Balls near a boundary are in
+     * more than one leaf, so the same pair can be found several times.
+     */
+    public void sort() {
+        Arrays.sort(pairs, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || pairs[i] != pairs[unique - 1]) {
+                pairs[unique++] = pairs[i];
+            }
+        }
+        size = unique;
+    }
+
+    /**
+     * Gets the id of the first (lower id) ball in a pair, or the first object
+     * of a pair added with addOrdered().
+     * 
+     * @param index Index of the pair
+     * @return Id of the first ball
+     */
+    public int getFirst(int index) {
+        return (int)(pairs[index] >>> 32);
+    }
+
+    /**
+     * Gets the id of the second (higher id) ball in a pair, or the second object
+     * of a pair added with addOrdered().
+     * 
+     * @param index Index of the pair
+     * @return Id of the second ball
+     */
+    public int getSecond(int index) {
+        return (int)pairs[index];
+    }
+
+    /**
+     * Removes all the pairs.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Gets the number of pairs.
+     * 
+     * @return Number of pairs in the list
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+
+/**
+ * Checks that the QuadTree settings don't change the results of a run. A
+ * reference simulation with the default settings and a candidate with other
+ * settings are stepped side by side from the same seed, and their state
+ * hashes are compared after every step. Any engine change that should give
+ * the same results (a different tree, a faster collision loop, ...) can be
+ * checked this way against the reference.
+ * <p>
+ * Gravity and drag are turned on so that balls pile up against the walls and
+ * obstacles. Barnes-Hut is left off, since its approximation depends on the
+ * shape of the tree.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class DeterminismCheck {
+
+    /**
+     * Main method. Runs the check and exits with status 1 if the runs differ.
+     *
+     * @param args Command-line arguments: the seed, the number of balls of each
+     *             type, the number of steps, the candidate's threshold and
+     *             maxDepth, and optionally a scene file
+     * @throws IOException If the scene file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: java DeterminismCheck <seed> <balls per type> <steps> <threshold> <maxDepth> [scene file]");
+            return;
+        }
+        long seed = Long.parseLong(args[0]);
+        int balls = Integer.parseInt(args[1]);
+        int steps = Integer.parseInt(args[2]);
+        int threshold = Integer.parseInt(args[3]);
+        int maxDepth = Integer.parseInt(args[4]);
+        SingleLinkedList<Segment> obstacles = args.length > 5 ? SceneLoader.load(args[5]) : new SingleLinkedList<Segment>();
+
+        Simulation reference = new Simulation(seed, ParticleTypeTable.createDefault(), obstacles);
+        Simulation candidate = new Simulation(seed, ParticleTypeTable.createDefault(), obstacles, threshold, maxDepth);
+        for (Simulation simulation : new Simulation[] {reference, candidate}) {
+            for (int type = 0; type < simulation.getTypes().size(); type++) {
+                simulation.addBalls(balls, (byte)type);
+            }
+            simulation.getForceFields().add(new UniformGravity(0, 0.05));
+            simulation.getForceFields().add(new Drag(0.001));
+        }
+
+        for (int i = 0; i < steps; i++) {
+            reference.step();
+            candidate.step();
+            if (reference.stateHash() != candidate.stateHash()) {
+                System.out.printf("Runs differ after step %d: %016x != %016x%n", reference.getStepCount(),
+                        reference.stateHash(), candidate.stateHash());
+                System.exit(1);
+            }
+        }
+        System.out.printf("Runs match for %d steps (state hash %016x)%n", reference.getStepCount(), reference.stateHash());
+    }
+}
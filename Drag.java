@@ -0,0 +1,31 @@
+/**
+ * A force field that slows every ball down in proportion to its speed.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class Drag implements ForceField {
+
+    private double coefficient;
+
+    /**
+     * Creates a drag field.
+     * 
+     * @param coefficient Fraction of the velocity lost per step (0 - 1)
+     */
+    public Drag(double coefficient) {
+        this.coefficient = coefficient;
+    }
+
+    /**
+     * Slows down all balls.
+     * 
+     * @param simulation Simulation containing the balls
+     */
+    public void apply(Simulation simulation) {
+        for (Ball ball : simulation.getBallList()) {
+            ball.vx -= ball.vx * coefficient;
+            ball.vy -= ball.vy * coefficient;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * A force that acts on the balls each step of the simulation, in addition
+ * to the contact forces from collisions.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public interface ForceField {
+
+    /**
+     * Changes the velocities of the balls according to the force.
+     * 
+     * @param simulation Simulation to apply the force to. Its QuadTree has
+     *                   already been updated for this step
+     */
+    public void apply(Simulation simulation);
+}
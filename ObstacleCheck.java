@@ -0,0 +1,52 @@
+import java.io.IOException;
+
+/**
+ * Checks that balls can't get inside of the closed shapes of a scene. Balls
+ * fall onto the obstacles under the same gravity as the "G" key, and after
+ * every step no ball's centre may be inside of a box or polygon. Fast balls
+ * and balls pushed by collisions are the ones that could get through.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class ObstacleCheck {
+
+    /**
+     * Main method. Runs the check and exits with status 1 if a ball gets inside
+     * of an obstacle.
+     *
+     * @param args Command-line arguments: the seed, the number of balls, the
+     *             number of steps, the scene file and optionally the id of the
+     *             balls' type (0 by default)
+     * @throws IOException If the scene file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: java ObstacleCheck <seed> <balls> <steps> <scene file> [type]");
+            return;
+        }
+        long seed = Long.parseLong(args[0]);
+        int balls = Integer.parseInt(args[1]);
+        int steps = Integer.parseInt(args[2]);
+        byte type = args.length > 4 ? Byte.parseByte(args[4]) : 0;
+
+        Simulation simulation = new Simulation(seed, ParticleTypeTable.createDefault(), SceneLoader.load(args[3]));
+        simulation.addBalls(balls, type);
+        simulation.getForceFields().add(new UniformGravity(0, 0.05));
+
+        double maxSpeed = 0;
+        for (int i = 0; i < steps; i++) {
+            simulation.step();
+            for (Ball ball : simulation.getBallList()) {
+                if (simulation.isInsideObstacle(ball.x, ball.y)) {
+                    System.out.printf("Ball %d is inside of an obstacle after step %d, at (%.2f, %.2f)%n",
+                            ball.id, simulation.getStepCount(), ball.x, ball.y);
+                    System.exit(1);
+                }
+                maxSpeed = Math.max(maxSpeed, Math.sqrt(ball.vx * ball.vx + ball.vy * ball.vy));
+            }
+        }
+        System.out.printf("No ball got inside of an obstacle in %d steps (fastest ball: %.1f per step)%n",
+                simulation.getStepCount(), maxSpeed);
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * A kind of particle, holding the properties shared by every ball of that
+ * kind. Balls only store the id of their type, which is looked up in a
+ * ParticleTypeTable.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class ParticleType {
+
+    private int minRadius, maxRadius;
+    private double density;
+    private double restitution;
+    private double friction;
+    private int paletteIndex;
+
+    /**
+     * Creates a particle type.
+     * 
+     * @param minRadius Smallest radius of a ball of this type
+     * @param maxRadius Largest radius of a ball of this type
+     * @param density Mass per unit of area
+     * @param restitution Fraction of the approach speed kept after a collision
+     *                    (1 is elastic, 0 is perfectly inelastic)
+     * @param friction Fraction of the sliding speed lost in a collision (0 - 1)
+     * @param paletteIndex Index of the colour in the table's palette
+     */
+    public ParticleType(int minRadius, int maxRadius, double density, double restitution,
+            double friction, int paletteIndex) {
+        this.minRadius = minRadius;
+        this.maxRadius = maxRadius;
+        this.density = density;
+        this.restitution = restitution;
+        this.friction = friction;
+        this.paletteIndex = paletteIndex;
+    }
+
+    /**
+     * Picks a random radius between the minimum and maximum radius.
+     * 
+     * @param random Random number generator to use
+     * @return Random radius
+     */
+    public int randomRadius(Random random) {
+        return (int)(random.nextDouble() * (maxRadius - minRadius + 1) + minRadius);
+    }
+
+    /**
+     * Gets the mass of a ball of this type.
+     * 
+     * @param radius Radius of the ball
+     * @return Mass of the ball
+     */
+    public double getMass(int radius) {
+        return density * Math.PI * radius * radius;
+    }
+
+    /**
+     * Gets the restitution of the type.
+     * 
+     * @return Fraction of the approach speed kept after a collision
+     */
+    public double getRestitution() {
+        return restitution;
+    }
+
+    /**
+     * Gets the friction of the type.
+     * 
+     * @return Fraction of the sliding speed lost in a collision
+     */
+    public double getFriction() {
+        return friction;
+    }
+
+    /**
+     * Gets the index of the type's colour.
+     * 
+     * @return Index in the palette
+     */
+    public int getPaletteIndex() {
+        return paletteIndex;
+    }
+}
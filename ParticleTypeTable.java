@@ -0,0 +1,98 @@
+/**
+ * Table of the particle types in a simulation and the palette of colours
+ * they are drawn with. Balls refer to their type by its index in the table.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class ParticleTypeTable {
+
+    public static final int MAX_TYPES = Byte.MAX_VALUE + 1;
+    private ParticleType[] types;
+    private int[] palette; // RGB colours
+    private int size;
+
+    /**
+     * Creates an empty table.
+     * 
+     * @param palette RGB colours that types can refer to
+     */
+    public ParticleTypeTable(int[] palette) {
+        this.types = new ParticleType[MAX_TYPES];
+        this.palette = palette;
+        this.size = 0;
+    }
+
+    /**
+     * Creates the table used when no other is given. Type 0 is the regular ball,
+     * followed by small heavy balls, large soft balls and very large sticky balls.
+     * 
+     * @return Table of default types
+     */
+    public static ParticleTypeTable createDefault() {
+        ParticleTypeTable table = new ParticleTypeTable(new int[] {
+            0x3366CC, 0xDC3912, 0xFF9900, 0x109618, 0x990099, 0x0099C6, 0xDD4477, 0x66AA00
+        });
+        table.add(new ParticleType(8, 15, 1, 1, 0, 0));
+        table.add(new ParticleType(3, 5, 4, 1, 0, 1));
+        table.add(new ParticleType(30, 45, 0.5, 0.8, 0.1, 2));
+        table.add(new ParticleType(100, 140, 1, 0.2, 0.5, 3));
+        return table;
+    }
+
+    /**
+     * Adds a type to the table.
+     * 
+     * @param type Type to add
+     * @return Id of the new type
+     */
+    public byte add(ParticleType type) {
+        if (size == MAX_TYPES) {
+            throw new IllegalStateException("Too many particle types (max " + MAX_TYPES + ")");
+        }
+        if (type.getPaletteIndex() < 0 || type.getPaletteIndex() >= palette.length) {
+            throw new IllegalArgumentException("No colour at palette index " + type.getPaletteIndex());
+        }
+        types[size] = type;
+        return (byte)size++;
+    }
+
+    /**
+     * Gets a type from the table.
+     * 
+     * @param id Id of the type
+     * @return The type
+     */
+    public ParticleType get(byte id) {
+        return types[id];
+    }
+
+    /**
+     * Gets the mass of a ball.
+     * 
+     * @param ball Ball to get the mass of
+     * @return Mass of the ball
+     */
+    public double getMass(Ball ball) {
+        return types[ball.type].getMass(ball.radius);
+    }
+
+    /**
+     * Gets the colour of a ball.
+     * 
+     * @param ball Ball to get the colour of
+     * @return RGB colour of the ball
+     */
+    public int getColor(Ball ball) {
+        return palette[types[ball.type].getPaletteIndex()];
+    }
+
+    /**
+     * Gets the number of types in the table.
+     * 
+     * @return Number of types
+     */
+    public int size() {
+        return size;
+    }
+}
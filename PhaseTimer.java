@@ -0,0 +1,79 @@
+import java.awt.Graphics;
+import java.awt.Color;
+
+/**
+ * Class that measures how long a phase of the program (simulating, rendering, ...)
+ * takes, smoothed over several frames.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+class PhaseTimer {
+
+    private static final double SMOOTHING = 0.05; // weight of the newest sample in the average
+
+    String name; //label shown when the timer is displayed
+    long startTime; //time (ns) when the current measurement was started
+    double averageMillis; //smoothed duration of the phase in milliseconds
+    double totalMillis; //total duration of every measurement
+
+    /**
+     * Creates a phase timer.
+     *
+     * @param name Label of the phase being timed
+     */
+    public PhaseTimer(String name) {
+        this.name = name;
+        this.averageMillis = 0;
+    }
+
+    /**
+     * Starts timing the phase.
+     */
+    public void start() {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops timing the phase and adds the elapsed time to the average.
+     */
+    public void stop() {
+        double elapsedMillis = (System.nanoTime() - startTime) / 1e6;
+        totalMillis += elapsedMillis;
+        if (averageMillis == 0) {
+            averageMillis = elapsedMillis; // first sample, nothing to smooth with
+        } else {
+            averageMillis += (elapsedMillis - averageMillis) * SMOOTHING;
+        }
+    }
+
+    /**
+     * Gets the smoothed duration of the phase.
+     *
+     * @return Average duration in milliseconds
+     */
+    public double getAverageMillis() {
+        return averageMillis;
+    }
+
+    /**
+     * Gets the total time spent in the phase.
+     *
+     * @return Total duration in milliseconds
+     */
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Displays the phase time as text to a graphics object.
+     *
+     * @param g Graphics object to draw to
+     * @param x X coordinate of the display
+     * @param y Y coordinate of the display
+     */
+    public void draw(Graphics g, int x, int y) {
+        g.setColor(Color.RED);
+        g.drawString(String.format("%s: %.2f ms", name, averageMillis), x, y);
+    }
+}
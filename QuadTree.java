@@ -2,6 +2,8 @@
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Iterator;
 
 /**
@@ -13,12 +15,19 @@ import java.util.Iterator;
  */
 public class QuadTree {
 
-    public static final int MAX_DEPTH = 5;
-    public static final int THRESHOLD = 5;
+    public static final int MAX_DEPTH = 5; // default deepest layer that is still subdivided
+    public static final int THRESHOLD = 5; // default number of balls needed to subdivide
     private QuadTree[] children; // 0 - top left, 1 - top right, 2 - bot left, 3 - bot right
     private SingleLinkedList<Ball> ballList;
+    private SingleLinkedList<Ball> largeBallList; // balls too large to pass down to the children
     private Rectangle boundingBox;
+    private Rectangle rootBox; // bounding box of the root tree
+    private StaticTree obstacles; // static segments of the scene, or null if there are none
     private int depth;
+    private int threshold;
+    private int maxDepth;
+    private double mass; // total mass of the balls centred in this area
+    private double centerX, centerY; // centre of mass of the balls centred in this area
 
     /**
      * Constructs a QuadTree.
@@ -27,29 +36,59 @@ public class QuadTree {
      * @param depth How many layers deep from the root tree
      */
     public QuadTree(Rectangle boundingBox, int depth) {
+        this(boundingBox, boundingBox, null, THRESHOLD, MAX_DEPTH, depth);
+    }
+
+    /**
+     * Constructs a root QuadTree with its own subdivision settings, whose balls can
+     * collide with static segments.
+     * 
+     * @param boundingBox Rectangle with the bounds of the tree
+     * @param obstacles Tree of the static segments in the scene, or null if there are none
+     * @param threshold Number of balls needed to subdivide a tree
+     * @param maxDepth Deepest layer that is still subdivided
+     */
+    public QuadTree(Rectangle boundingBox, StaticTree obstacles, int threshold, int maxDepth) {
+        this(boundingBox, boundingBox, obstacles, threshold, maxDepth, 0);
+    }
+
+    /**
+     * Constructs a QuadTree inside of a root tree.
+     * 
+     * @param boundingBox Rectangle with the bounds of the tree
+     * @param rootBox Rectangle with the bounds of the root tree
+     * @param obstacles Tree of the static segments in the scene, or null
+     * @param threshold Number of balls needed to subdivide a tree
+     * @param maxDepth Deepest layer that is still subdivided
+     * @param depth How many layers deep from the root tree
+     */
+    private QuadTree(Rectangle boundingBox, Rectangle rootBox, StaticTree obstacles,
+            int threshold, int maxDepth, int depth) {
         this.boundingBox = boundingBox;
+        this.rootBox = rootBox;
+        this.obstacles = obstacles;
         this.children = new QuadTree[4];
         this.ballList = new SingleLinkedList<Ball>();
+        this.largeBallList = new SingleLinkedList<Ball>();
+        this.threshold = threshold;
+        this.maxDepth = maxDepth;
         this.depth = depth;
     }
 
     /**
-     * Updates the state of the QuadTree. Checks for various tasks: Collisions,
-     * subdivisions, and collpasing of children. Also calls update on the children.
+     * Updates the structure of the QuadTree. Checks for subdivisions and
+     * collapsing of children. Also calls update on the children.
      */
     public void update() {
         if(isLeaf()) {
-            if(ballList.size() > 1){
-                checkForCollisions(); // Check for collisions (only leaves)
-            }
             // Check if enough balls are in to subdivide -> only on leaves
-            if(ballList.size() >= THRESHOLD && depth <= MAX_DEPTH) {
+            if(ballList.size() >= threshold && depth <= maxDepth) {
                 subdivide();
             }
         }
         else{
             // Collapse children
-            if(ballList.size() < THRESHOLD){
+            if(ballList.size() < threshold){
                 collapseChildren();
             }
             else{
@@ -68,13 +107,13 @@ public class QuadTree {
      */
     private void subdivide() {
         children[0] = new QuadTree(
-                new Rectangle(boundingBox.x, boundingBox.y, boundingBox.width / 2, boundingBox.height / 2), depth + 1);
+                new Rectangle(boundingBox.x, boundingBox.y, boundingBox.width / 2, boundingBox.height / 2), rootBox, obstacles, threshold, maxDepth, depth + 1);
         children[1] = new QuadTree(new Rectangle(boundingBox.x + boundingBox.width / 2, boundingBox.y,
-                boundingBox.width / 2, boundingBox.height / 2), depth + 1);
+                boundingBox.width / 2, boundingBox.height / 2), rootBox, obstacles, threshold, maxDepth, depth + 1);
         children[2] = new QuadTree(new Rectangle(boundingBox.x, boundingBox.y + boundingBox.height / 2,
-                boundingBox.width / 2, boundingBox.height / 2), depth + 1);
+                boundingBox.width / 2, boundingBox.height / 2), rootBox, obstacles, threshold, maxDepth, depth + 1);
         children[3] = new QuadTree(new Rectangle(boundingBox.x + boundingBox.width / 2,
-                boundingBox.y + boundingBox.height / 2, boundingBox.width / 2, boundingBox.height / 2), depth + 1);
+                boundingBox.y + boundingBox.height / 2, boundingBox.width / 2, boundingBox.height / 2), rootBox, obstacles, threshold, maxDepth, depth + 1);
 
         // Add balls to appropriate quadrant
         for(Ball ball : ballList) {
@@ -89,16 +128,40 @@ public class QuadTree {
         for(int i = 0; i < children.length; i++) {
             children[i] = null;
         }
+        largeBallList.clear();
+        // Balls counted by a child are now counted by this tree
+        for(Ball ball : ballList) {
+            if(boundingBox.contains(ball.owner.getBoundingBox())) {
+                ball.owner = this;
+            }
+        }
     }
     
     /**
      * Adds a ball to the bounding area of this QuadTree. If this layer has
-     * children, the ball will also be added to the appropriate child.
+     * children, the ball will also be added to the appropriate child. Should
+     * be called on the root tree.
      * 
      * @param ball Ball to add to the tree/subtrees
      */
     public void addBall(Ball ball) {
+        addBall(ball, true);
+    }
+
+    /**
+     * Adds a ball to this tree and its children. Balls near a boundary are added
+     * to more than one tree, but only one of them owns the ball. The owner is the
+     * tree that counts the ball for Barnes-Hut and checks it against obstacles,
+     * so that it is counted exactly once even after collisions move it.
+     * 
+     * @param ball Ball to add to the tree/subtrees
+     * @param owned True if this tree is the owner of the ball (until a child takes over)
+     */
+    private void addBall(Ball ball, boolean owned) {
         ballList.add(ball);
+        if(owned) {
+            ball.owner = this;
+        }
         if(!isLeaf()) {
             addBallToChildren(ball);
         }
@@ -107,20 +170,40 @@ public class QuadTree {
     /**
      * Find the appropriate children to add a ball to. Balls that occupy a space
      * in between two boundaries will be added to both, so that cross-boundary
-     * collisions can be made.
+     * collisions can be made. Balls wider than a child (their diameter is more
+     * than the child's width) would be copied into a large part of the subtree,
+     * so instead they are kept in this tree.
      * 
      * @param ball Ball to add to the children
      */
     private void addBallToChildren(Ball ball) {
+        boolean owned = ball.owner == this;
+        double size = ball.radius * 2;
+        for (int i = 0; i < children.length; i++) {
+            // A ball completely inside of one child only has to be added to that child
+            if (children[i].getBoundingBox().contains(ball.x - ball.radius, ball.y - ball.radius, size, size)) {
+                children[i].addBall(ball, owned);
+                return;
+            }
+        }
+        if (size > children[0].getBoundingBox().width) {
+            largeBallList.add(ball);
+            return;
+        }
         for (int i = 0; i < children.length; i++) {
             // Create an enlarged box to account for balls that occupy multiple children.
             Rectangle childBox = children[i].getBoundingBox();
             Rectangle enlargedBox = new Rectangle(childBox);
             enlargedBox.grow(ball.radius, ball.radius);
             if (enlargedBox.contains(ball.x, ball.y)) {
-                children[i].addBall(ball);
+                // Ownership goes to the child that contains the centre
+                children[i].addBall(ball, owned && children[i].containsCenter(ball));
             }
         }
+        if (ball.owner == this) {
+            // No child contains the centre (the ball is far outside of the root), so keep it here
+            largeBallList.add(ball);
+        }
     }
 
     /**
@@ -133,15 +216,34 @@ public class QuadTree {
             }
         }
         ballList.clear();
+        largeBallList.clear();
     }
 
     /**
-     * Compares all combinations of balls in the list and checks for a collision.
+     * Compares all combinations of balls in the leaves and records the pairs that
+     * touch. Large balls kept higher up in the tree are compared with every ball
+     * in their tree. Collisions are not resolved here, so that the caller can
+     * resolve them in an order that doesn't depend on how the balls were inserted.
      * Uses iterators rather than  the .get() function from SingleLinkedList, as
      * that must interally iterate to reach the element (and thus is only efficient
      * for single acceses).
+     * 
+     * @param pairs List to add the touching pairs to
      */
-    private void checkForCollisions() {
+    public void findCollisions(CollisionPairs pairs) {
+        if(!isLeaf()) {
+            for(Ball large : largeBallList) {
+                for(Ball ball : ballList) {
+                    if(ball != large && Point2D.distance(large.x, large.y, ball.x, ball.y) < large.radius + ball.radius) {
+                        pairs.add(large.id, ball.id);
+                    }
+                }
+            }
+            for(QuadTree child : children) {
+                child.findCollisions(pairs);
+            }
+            return;
+        }
         SingleLinkedList.CustomIterator<Ball> ballListIterator1 = ballList.iterator();
         Iterator<Ball> ballListIterator2 = ballList.iterator();
         Ball ball1, ball2;
@@ -151,74 +253,152 @@ public class QuadTree {
             ballListIterator2 = ballListIterator1.clone();
             while(ballListIterator2.hasNext()) {
                 ball2 = ballListIterator2.next();
-                // Collide two balls if they touch
+                // Record the two balls if they touch
                 if(Point2D.distance(ball1.x, ball1.y, ball2.x, ball2.y) < ball1.radius + ball2.radius) {
-                    collide(ball1, ball2);
+                    pairs.add(ball1.id, ball2.id);
                 }
             }
-            ballListIterator2 = ballList.iterator();
         }
     }
 
     /**
-     * Sets new velocites and positions for the collsion of two balls.
+     * Records the balls that touch a static segment, or whose centre crossed one
+     * since the start of the step (fast balls, or balls pushed by a collision).
+     * Each ball is only checked by the tree that owns it, which asks the
+     * StaticTree for the segments near its own area rather than checking every
+     * segment.
      * 
-     * @param ball1 First ball in collision
-     * @param ball2 Second ball in collision
-     */
-    private void collide(Ball ball1, Ball ball2) {
-        double m1 = ball1.mass;
-        double m2 = ball2.mass;
-
-        // Distance between x & y
-        double dx = ball2.x - ball1.x;
-        double dy = ball2.y - ball1.y;
-
-        // Angle of axis of collision
-        double angle = Math.atan2(dy, dx);
-        double sin = Math.sin(angle);
-        double cos = Math.cos(angle);
-
-        // Rotated positions on collision axis
-        double x1 = 0, y1 = 0;
-        double x2 = dx * cos + dy * sin;
-        double y2 = dy * cos - dx * sin;
-
-        // Rotated velocities on collision axis
-        double vx1 = ball1.vx * cos + ball1.vy * sin;
-        double vy1 = ball1.vy * cos - ball1.vx * sin;
-        double vx2 = ball2.vx * cos + ball2.vy * sin;
-        double vy2 = ball2.vy * cos - ball2.vx * sin;
-
-        // Final velocities on 1D axis of collision (elastic collsion formula)
-        double vx1f = ((m1 - m2) * vx1 + 2 * m2 * vx2) / (m1 + m2);
-        double vx2f = ((m2 - m1) * vx2 + 2 * m1 * vx1) / (m1 + m2);
-        vx1 = vx1f;
-        vx2 = vx2f;
-
-        // Move balls apart so that they don't overlap
-        double vTotal = Math.abs(vx1) + Math.abs(vx2);
-        double overlap = (ball1.radius + ball2.radius) - Math.abs(x1 - x2);
-        x1 += vx1 / vTotal * overlap;
-        x2 += vx2 / vTotal * overlap;
-
-        // Rotate positions back
-        double x1f = x1 * cos - y1 * sin;
-        double y1f = y1 * cos + x1 * sin;
-        double x2f = x2 * cos - y2 * sin;
-        double y2f = y2 * cos + x2 * sin;
-
-        // Set final position
-        ball2.x = ball1.x + x2f;
-        ball2.y = ball1.y + y2f;
-        ball1.x = ball1.x + x1f;
-        ball1.y = ball1.y + y1f;
-
-        // Set velocites at original angles
-        ball1.vx = vx1 * cos - vy1 * sin;
-        ball1.vy = vy1 * cos + vx1 * sin;
-        ball2.vx = vx2 * cos - vy2 * sin;
-        ball2.vy = vy2 * cos + vx2 * sin;
+     * @param contacts List to add the touching ball and segment ids to
+     */
+    public void findObstacleContacts(CollisionPairs contacts) {
+        if (obstacles == null) {
+            return;
+        }
+        findObstacleContacts(contacts, new ArrayList<Segment>());
+    }
+
+    /**
+     * Records the balls owned by this tree and its children that touch a static segment.
+     * 
+     * @param contacts List to add the touching ball and segment ids to
+     * @param nearby Scratch list for the segments near each tree, reused by the whole hierarchy
+     */
+    private void findObstacleContacts(CollisionPairs contacts, ArrayList<Segment> nearby) {
+        SingleLinkedList<Ball> ownedBalls = isLeaf() ? ballList : largeBallList;
+        // Area covered by the owned balls where they are now (collisions may have moved them)
+        // and by the paths their centres took during the step
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Ball ball : ownedBalls) {
+            if (ball.owner == this) {
+                minX = Math.min(minX, Math.min(ball.x - ball.radius, ball.startX));
+                minY = Math.min(minY, Math.min(ball.y - ball.radius, ball.startY));
+                maxX = Math.max(maxX, Math.max(ball.x + ball.radius, ball.startX));
+                maxY = Math.max(maxY, Math.max(ball.y + ball.radius, ball.startY));
+            }
+        }
+        if (minX <= maxX) {
+            // Any segment that an owned ball touches or crossed crosses this area
+            nearby.clear();
+            obstacles.query(new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY), nearby);
+            if (!nearby.isEmpty()) {
+                for (Ball ball : ownedBalls) {
+                    if (ball.owner == this) {
+                        for (Segment segment : nearby) {
+                            if (segment.ptSegDistSq(ball.x, ball.y) < ball.radius * ball.radius
+                                    || segment.intersectsLine(ball.startX, ball.startY, ball.x, ball.y)) {
+                                contacts.addOrdered(ball.id, segment.id);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (!isLeaf()) {
+            for (QuadTree child : children) {
+                child.findObstacleContacts(contacts, nearby);
+            }
+        }
+    }
+
+    /**
+     * Computes the total mass and centre of mass of every tree in the hierarchy,
+     * for use by the Barnes-Hut approximation. Balls near a boundary are stored
+     * in more than one tree, so each ball is only counted by the tree that
+     * owns it.
+     * 
+     * @param types Table of particle types, to find the masses of the balls
+     */
+    public void computeMassDistribution(ParticleTypeTable types) {
+        double weightedX = 0, weightedY = 0;
+        mass = 0;
+        for (Ball ball : isLeaf() ? ballList : largeBallList) {
+            if (ball.owner == this) {
+                double ballMass = types.getMass(ball);
+                mass += ballMass;
+                weightedX += ballMass * ball.x;
+                weightedY += ballMass * ball.y;
+            }
+        }
+        if (!isLeaf()) {
+            for (QuadTree child : children) {
+                child.computeMassDistribution(types);
+                mass += child.mass;
+                weightedX += child.mass * child.centerX;
+                weightedY += child.mass * child.centerY;
+            }
+        }
+        if (mass > 0) {
+            centerX = weightedX / mass;
+            centerY = weightedY / mass;
+        }
+    }
+
+    /**
+     * Returns whether the centre of a ball is inside this tree's area. Balls that
+     * have been pushed slightly outside of the root are treated as being on its edge,
+     * so that the children of a tree never both contain the same centre.
+     * 
+     * @param ball Ball to check
+     * @return True if this tree contains the ball's centre
+     */
+    private boolean containsCenter(Ball ball) {
+        double x = Math.min(Math.max(ball.x, rootBox.x), Math.nextDown(rootBox.getMaxX()));
+        double y = Math.min(Math.max(ball.y, rootBox.y), Math.nextDown(rootBox.getMaxY()));
+        return boundingBox.contains(x, y);
+    }
+
+    /**
+     * Adds up the acceleration that the balls in this tree cause on a ball. Trees
+     * that are far enough away (width / distance below the opening angle) are
+     * treated as a single mass at their centre of mass, otherwise the children are
+     * visited. Leaves always sum the balls individually. Requires
+     * computeMassDistribution() to have been called since the tree last changed.
+     * 
+     * @param ball Ball to find the acceleration of
+     * @param field Force law and opening angle to use
+     * @param types Table of particle types, to find the masses of the balls
+     * @param acceleration Array that the x and y acceleration are added to
+     */
+    public void accumulateForce(Ball ball, BarnesHut field, ParticleTypeTable types, double[] acceleration) {
+        if (mass == 0) {
+            return;
+        }
+        double distance = Point2D.distance(ball.x, ball.y, centerX, centerY);
+        if (!isLeaf() && boundingBox.width < field.getTheta() * distance) {
+            field.addAcceleration(ball, mass, centerX, centerY, acceleration);
+            return;
+        }
+        for (Ball other : isLeaf() ? ballList : largeBallList) {
+            if (other != ball && other.owner == this) {
+                field.addAcceleration(ball, types.getMass(other), other.x, other.y, acceleration);
+            }
+        }
+        if (!isLeaf()) {
+            for (QuadTree child : children) {
+                child.accumulateForce(ball, field, types, acceleration);
+            }
+        }
     }
 
     /**
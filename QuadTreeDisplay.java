@@ -3,13 +3,12 @@
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import java.awt.Graphics;
-import java.awt.Color;
 
 //Keyboard imports
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
-import java.awt.Rectangle;
+import java.io.IOException;
 
 /**
  * Main display and game loop class
@@ -20,37 +19,53 @@ import java.awt.Rectangle;
 class QuadTreeDisplay extends JFrame {
 
     static GameAreaPanel gamePanel;    
-    SingleLinkedList<Ball> masterBallList;
-    QuadTree root;
+    Simulation simulation;
+    ForceField gravity, drag;
+    BarnesHut barnesHut;
     FrameRate framerate;
+    PhaseTimer renderTimer;
+    BallRenderer renderer;
     
     /**
      * Main method. Runs the simulation program.
      * 
-     * @param args Command-line arguments
+     * @param args Command-line arguments. The first argument is an optional
+     *             seed, to repeat an earlier run, and the second is an optional
+     *             scene file with obstacles (see SceneLoader)
+     * @throws IOException If the scene file can't be read
      */
-    public static void main(String[] args) {
-        new QuadTreeDisplay();
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        SingleLinkedList<Segment> obstacles = args.length > 1 ? SceneLoader.load(args[1]) : new SingleLinkedList<Segment>();
+        System.out.println("Seed: " + seed);
+        new QuadTreeDisplay(seed, obstacles);
     }
 
     /**
      * Creates the panel for the QuadTree collision simulation.
+     * 
+     * @param seed Seed of the simulation's random number generator
+     * @param obstacles Static segments in the scene
      */
-    public QuadTreeDisplay() {
+    public QuadTreeDisplay(long seed, SingleLinkedList<Segment> obstacles) {
         super("haha balls go boing");
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setSize(1042, 1065);
         gamePanel = new GameAreaPanel();
-        this.add(new GameAreaPanel());
+        this.add(gamePanel);
         MyKeyListener keyListener = new MyKeyListener();
         this.addKeyListener(keyListener);
         this.requestFocusInWindow();
-        this.setVisible(true);
 
-        // Initialize simulation objects
-        root = new QuadTree(new Rectangle(1024, 1024), 0);
-        masterBallList = new SingleLinkedList<>();
+        // Initialize simulation objects before the panel can be painted
+        simulation = new Simulation(seed, ParticleTypeTable.createDefault(), obstacles);
+        gravity = new UniformGravity(0, 0.05);
+        drag = new Drag(0.001);
+        barnesHut = new BarnesHut(0.5, 0.01, 10);
         framerate = new FrameRate();
+        renderTimer = new PhaseTimer("render");
+        renderer = new BallRenderer(Simulation.WORLD_SIZE);
+        this.setVisible(true);
 
         // Start the game loop in a separate thread (yikes)
         Thread t = new Thread(new Runnable(){ public void run(){ animate();}}); 
@@ -62,36 +77,7 @@ class QuadTreeDisplay extends JFrame {
      */
     public void animate() {
         while (true) {
-            for(Ball ball : masterBallList){
-                // Detect collision with walls
-                if(ball.x - ball.radius <= 0){
-                    ball.x = 0 + ball.radius;
-                    ball.vx = -ball.vx;
-                }  
-                else if (ball.x + ball.radius >= 1024){
-                    ball.x = 1024 - ball.radius;
-                    ball.vx = -ball.vx;
-                }
-                else if(ball.y - ball.radius <= 0){
-                    ball.y = 0 + ball.radius;
-                    ball.vy = -ball.vy;
-                } 
-                else if(ball.y + ball.radius >= 1024){
-                    ball.y = 1024 - ball.radius;
-                    ball.vy = -ball.vy;
-                }
-                // Update balls
-                ball.update();
-            }
-
-            // Clear and reinsert balls to "move" balls between boundaries
-            root.clearBallList();
-            for(Ball ball : masterBallList){
-                root.addBall(ball);
-            }
-
-            // Update the QuadTree
-            root.update();
+            simulation.step();
            
             // Update the frame information
             framerate.update();
@@ -113,6 +99,14 @@ class QuadTreeDisplay extends JFrame {
      */
     private class GameAreaPanel extends JPanel {
 
+        /**
+         * Creates the panel. Balls are drawn into the renderer's own image, so
+         * Swing only has to double buffer the finished frame.
+         */
+        public GameAreaPanel() {
+            setDoubleBuffered(true);
+        }
+
         /**
          * Draw method. Draws all items to the panel.
          * 
@@ -120,20 +114,18 @@ class QuadTreeDisplay extends JFrame {
          */
         public void paintComponent(Graphics g) {
             super.paintComponent(g);
-            setDoubleBuffered(true);
-            
-            /* Draw all balls
-            * Line 129 (sometimes, it's inconsistent) causes a NullPointerException on start (that doesn't stop the program).
-            * My Iterator implementation should be fine, so I'm really not sure what's causing this. (some thread issue?)
-            */ 
-            for(Ball b : masterBallList){
-                b.draw(g);
-            }
 
-            // Draw QuadTree and framerate
-            g.setColor(Color.BLUE);
-            root.draw(g);
+            // Draw all balls (and the QuadTree) into the renderer's image
+            renderTimer.start();
+            g.drawImage(renderer.render(simulation, getWidth(), getHeight()), 0, 0, null);
+            renderTimer.stop();
+
+            // Draw framerate and timings
             framerate.draw(g, 10, 10);
+            simulation.getSimTimer().draw(g, 10, 25);
+            simulation.getForceTimer().draw(g, 10, 40);
+            g.drawString("interactions: " + barnesHut.getInteractions(), 150, 40);
+            renderTimer.draw(g, 10, 55);
         }
     }
 
@@ -151,8 +143,52 @@ class QuadTreeDisplay extends JFrame {
         public void keyPressed(KeyEvent e) {
             // "A" is used to add balls
             if (KeyEvent.getKeyText(e.getKeyCode()).equals("A")) {
-                Ball add = new Ball();
-                masterBallList.add(add);
+                simulation.requestBall((byte)0);
+            }
+            // "1" - "9" add balls of the other particle types
+            else if (e.getKeyCode() >= KeyEvent.VK_1 && e.getKeyCode() <= KeyEvent.VK_9) {
+                int type = e.getKeyCode() - KeyEvent.VK_1;
+                if (type < simulation.getTypes().size()) {
+                    simulation.requestBall((byte)type);
+                }
+            }
+            // "T" toggles the QuadTree overlay
+            else if (e.getKeyCode() == KeyEvent.VK_T) {
+                renderer.toggleTree();
+            }
+            // "L" toggles drawing small balls as points
+            else if (e.getKeyCode() == KeyEvent.VK_L) {
+                renderer.toggleLevelOfDetail();
+            }
+            // "+" and "-" zoom in and out
+            else if (e.getKeyCode() == KeyEvent.VK_EQUALS || e.getKeyCode() == KeyEvent.VK_ADD) {
+                renderer.zoom(1.25);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_MINUS || e.getKeyCode() == KeyEvent.VK_SUBTRACT) {
+                renderer.zoom(0.8);
+            }
+            // Arrow keys move the view
+            else if (e.getKeyCode() == KeyEvent.VK_LEFT) {
+                renderer.pan(-1, 0);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
+                renderer.pan(1, 0);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_UP) {
+                renderer.pan(0, -1);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
+                renderer.pan(0, 1);
+            }
+            // "G", "D" and "B" toggle gravity, drag and Barnes-Hut attraction
+            else if (e.getKeyCode() == KeyEvent.VK_G) {
+                simulation.requestToggle(gravity);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_D) {
+                simulation.requestToggle(drag);
+            }
+            else if (e.getKeyCode() == KeyEvent.VK_B) {
+                simulation.requestToggle(barnesHut);
             }
             // "ESC" to quit
             else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
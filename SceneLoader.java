@@ -0,0 +1,116 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Reads the static geometry of a scene from a text file. Each line holds one
+ * shape, made of a keyword followed by numbers:
+ * <pre>
+ * # a comment
+ * segment x1 y1 x2 y2
+ * box x y width height
+ * polygon x1 y1 x2 y2 x3 y3 ...
+ * </pre>
+ * Boxes and polygons are closed, and are turned into one segment per side.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class SceneLoader {
+
+    /**
+     * Loads the segments of a scene file.
+     * 
+     * @param path Path of the scene file
+     * @return List of segments, with ids in the order they appear in the file
+     * @throws IOException If the file can't be read
+     * @throws IllegalArgumentException If a line of the file isn't a valid shape
+     */
+    public static SingleLinkedList<Segment> load(String path) throws IOException {
+        SingleLinkedList<Segment> segments = new SingleLinkedList<Segment>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    parseShape(line, segments);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Parses one shape and adds its segments to a list.
+     * 
+     * @param line Line of the scene file
+     * @param segments List to add the segments to
+     */
+    private static void parseShape(String line, SingleLinkedList<Segment> segments) {
+        String[] tokens = line.split("\\s+");
+        double[] values = new double[tokens.length - 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.parseDouble(tokens[i + 1]); // NumberFormatException is an IllegalArgumentException
+        }
+
+        switch (tokens[0]) {
+            case "segment":
+                if (values.length != 4) {
+                    throw new IllegalArgumentException("segment needs 4 numbers: x1 y1 x2 y2");
+                }
+                addSegment(segments, -1, values[0], values[1], values[2], values[3]);
+                break;
+            case "box":
+                if (values.length != 4) {
+                    throw new IllegalArgumentException("box needs 4 numbers: x y width height");
+                }
+                double x = values[0], y = values[1], width = values[2], height = values[3];
+                addPolygon(segments, new double[] {x, y, x + width, y, x + width, y + height, x, y + height});
+                break;
+            case "polygon":
+                if (values.length < 6 || values.length % 2 != 0) {
+                    throw new IllegalArgumentException("polygon needs at least 3 points (x y pairs)");
+                }
+                addPolygon(segments, values);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape \"" + tokens[0] + "\"");
+        }
+    }
+
+    /**
+     * Adds the sides of a closed polygon to a list.
+     * 
+     * @param segments List to add the segments to
+     * @param points X and y coordinates of the corners, in order
+     */
+    private static void addPolygon(SingleLinkedList<Segment> segments, double[] points) {
+        int shape = segments.size(); // the shape is named after its first side
+        for (int i = 0; i < points.length; i += 2) {
+            int next = (i + 2) % points.length; // last corner connects back to the first
+            addSegment(segments, shape, points[i], points[i + 1], points[next], points[next + 1]);
+        }
+    }
+
+    /**
+     * Adds a segment to a list, giving it the next id.
+     * 
+     * @param segments List to add the segment to
+     * @param shape Id of the closed shape the segment is a side of, or -1
+     * @param x1 X coordinate of the start
+     * @param y1 Y coordinate of the start
+     * @param x2 X coordinate of the end
+     * @param y2 Y coordinate of the end
+     */
+    private static void addSegment(SingleLinkedList<Segment> segments, int shape,
+            double x1, double y1, double x2, double y2) {
+        segments.add(new Segment(segments.size(), shape, x1, y1, x2, y2));
+    }
+}
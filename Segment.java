@@ -0,0 +1,75 @@
+import java.awt.geom.Line2D;
+
+/**
+ * A static line segment that balls bounce off of. Boxes and polygons are
+ * made out of several segments.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+@SuppressWarnings("serial")
+public class Segment extends Line2D.Double {
+
+    public final int id;
+    public final int shape; // id of the first side of the closed shape this is a side of, or -1
+
+    /**
+     * Creates a segment between two points.
+     * 
+     * @param id Unique number of the segment, used to order contacts
+     * @param shape Id of the closed shape the segment is a side of, or -1. The
+     *              sides of a shape must have consecutive ids
+     * @param x1 X coordinate of the start
+     * @param y1 Y coordinate of the start
+     * @param x2 X coordinate of the end
+     * @param y2 Y coordinate of the end
+     */
+    public Segment(int id, int shape, double x1, double y1, double x2, double y2) {
+        super(x1, y1, x2, y2);
+        this.id = id;
+        this.shape = shape;
+    }
+
+    /**
+     * Finds the point on the segment closest to a point.
+     * 
+     * @param px X coordinate of the point
+     * @param py Y coordinate of the point
+     * @param closest Array that the x and y of the closest point are written to
+     */
+    public void closestPoint(double px, double py, double[] closest) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - x1) * dx + (py - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        closest[0] = x1 + t * dx;
+        closest[1] = y1 + t * dy;
+    }
+
+    /**
+     * Checks if a ray going right from a point crosses the segment. A point is
+     * inside of a closed shape if the ray crosses an odd number of its sides.
+     * 
+     * @param px X coordinate of the start of the ray
+     * @param py Y coordinate of the start of the ray
+     * @return True if the ray crosses the segment
+     */
+    public boolean crossesRay(double px, double py) {
+        if ((y1 > py) == (y2 > py)) {
+            return false;
+        }
+        return px < x1 + (py - y1) * (x2 - x1) / (y2 - y1);
+    }
+
+    /**
+     * Gets which side of the segment's line a point is on.
+     * 
+     * @param px X coordinate of the point
+     * @param py Y coordinate of the point
+     * @return Positive on one side, negative on the other and 0 on the line
+     */
+    public double side(double px, double py) {
+        return (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+    }
+}
@@ -0,0 +1,530 @@
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The state of the collision simulation and the loop that steps it forward,
+ * without any display. Given the same seed and the same sequence of calls,
+ * two simulations go through exactly the same states, which can be compared
+ * with stateHash().
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class Simulation {
+
+    public static final int WORLD_SIZE = 1024;
+    public static final int MAX_CONTACT_PASSES = 4; // times obstacle contacts are checked in one step
+    public static final int MAX_PLACEMENT_ATTEMPTS = 1000; // random positions tried for a new ball
+    private ParticleTypeTable types;
+    private SingleLinkedList<Ball> ballList;
+    private Ball[] ballsById;
+    private SingleLinkedList<Segment> obstacleList;
+    private Segment[] obstaclesById;
+    private QuadTree root;
+    private SingleLinkedList<ForceField> forceFields;
+    private CollisionPairs pairs;
+    private CollisionPairs contacts; // balls touching obstacles
+    private double[] closest; // closest point of a segment to a bouncing ball, reused by every bounce
+    private Random random;
+    private ConcurrentLinkedQueue<Byte> requestedBalls; // types of balls requested by other threads
+    private ConcurrentLinkedQueue<ForceField> requestedToggles; // force fields to turn on or off
+    private long stepCount;
+    private PhaseTimer simTimer;
+    private PhaseTimer forceTimer;
+
+    /**
+     * Creates an empty simulation.
+     * 
+     * @param seed Seed of the random number generator used to create balls
+     * @param types Table of the particle types balls can have
+     * @param obstacles Static segments inside of the walls, with ids 0 to size - 1
+     *                  (as created by SceneLoader)
+     */
+    public Simulation(long seed, ParticleTypeTable types, SingleLinkedList<Segment> obstacles) {
+        this(seed, types, obstacles, QuadTree.THRESHOLD, QuadTree.MAX_DEPTH);
+    }
+
+    /**
+     * Creates an empty simulation with its own QuadTree settings.
+     * 
+     * @param seed Seed of the random number generator used to create balls
+     * @param types Table of the particle types balls can have
+     * @param obstacles Static segments inside of the walls, with ids 0 to size - 1
+     *                  (as created by SceneLoader)
+     * @param threshold Number of balls needed to subdivide a tree
+     * @param maxDepth Deepest layer of the QuadTree that is still subdivided
+     */
+    public Simulation(long seed, ParticleTypeTable types, SingleLinkedList<Segment> obstacles,
+            int threshold, int maxDepth) {
+        Rectangle worldBox = new Rectangle(WORLD_SIZE, WORLD_SIZE);
+        this.types = types;
+        this.ballList = new SingleLinkedList<>();
+        this.ballsById = new Ball[64];
+        this.obstacleList = obstacles;
+        this.obstaclesById = new Segment[obstacles.size()];
+        for (Segment segment : obstacles) {
+            obstaclesById[segment.id] = segment;
+        }
+        StaticTree staticTree = obstacles.size() > 0 ? new StaticTree(worldBox, obstacles) : null;
+        this.root = new QuadTree(worldBox, staticTree, threshold, maxDepth);
+        this.forceFields = new SingleLinkedList<>();
+        this.pairs = new CollisionPairs();
+        this.contacts = new CollisionPairs();
+        this.closest = new double[2];
+        this.random = new Random(seed);
+        this.requestedBalls = new ConcurrentLinkedQueue<>();
+        this.requestedToggles = new ConcurrentLinkedQueue<>();
+        this.stepCount = 0;
+        this.simTimer = new PhaseTimer("sim");
+        this.forceTimer = new PhaseTimer("forces");
+    }
+
+    /**
+     * Adds random balls to the simulation. Must be called from the thread that
+     * steps the simulation.
+     * 
+     * @param count Number of balls to add
+     * @param type Id of the balls' type
+     * @throws IllegalStateException If no place clear of the obstacles is found for a ball
+     */
+    public void addBalls(int count, byte type) {
+        for (int i = 0; i < count; i++) {
+            int id = ballList.size();
+            if (id == ballsById.length) {
+                ballsById = Arrays.copyOf(ballsById, id * 2);
+            }
+            // Balls start clear of the obstacles, since a ball inside of one would be stuck there
+            Ball ball = new Ball(id, type, types, random, WORLD_SIZE);
+            for (int attempt = 1; isInsideObstacle(ball.x, ball.y) || touchesObstacle(ball); attempt++) {
+                if (attempt == MAX_PLACEMENT_ATTEMPTS) {
+                    throw new IllegalStateException("No room for a ball of type " + type);
+                }
+                ball = new Ball(id, type, types, random, WORLD_SIZE);
+            }
+            ballsById[id] = ball;
+            ballList.add(ball);
+        }
+    }
+
+    /**
+     * Asks for a random ball to be added at the start of the next step. Safe to
+     * call from any thread (e.g. a key listener).
+     * 
+     * @param type Id of the ball's type
+     */
+    public void requestBall(byte type) {
+        requestedBalls.add(type);
+    }
+
+    /**
+     * Asks for a force field to be turned on (or off, if it is already on) at the
+     * start of the next step. Safe to call from any thread (e.g. a key listener).
+     * 
+     * @param field Force field to toggle
+     */
+    public void requestToggle(ForceField field) {
+        requestedToggles.add(field);
+    }
+
+    /**
+     * Steps the simulation forward: moves the balls, rebuilds the QuadTree,
+     * resolves collisions and applies the force fields.
+     */
+    public void step() {
+        Byte requestedType;
+        while ((requestedType = requestedBalls.poll()) != null) {
+            addBalls(1, requestedType);
+        }
+        ForceField requestedField;
+        while ((requestedField = requestedToggles.poll()) != null) {
+            if (!forceFields.remove(requestedField)) {
+                forceFields.add(requestedField);
+            }
+        }
+
+        simTimer.start();
+        for(Ball ball : ballList){
+            ball.startX = ball.x;
+            ball.startY = ball.y;
+            bounceOffWalls(ball);
+            // Update balls
+            ball.update();
+        }
+
+        // Clear and reinsert balls to "move" balls between boundaries
+        root.clearBallList();
+        for(Ball ball : ballList){
+            root.addBall(ball);
+        }
+
+        // Update the QuadTree, then resolve collisions in order of ball ids
+        root.update();
+        pairs.clear();
+        root.findCollisions(pairs);
+        pairs.sort();
+        for (int i = 0; i < pairs.size(); i++) {
+            Ball ball1 = ballsById[pairs.getFirst(i)];
+            Ball ball2 = ballsById[pairs.getSecond(i)];
+            // An earlier collision may have already pushed the balls apart
+            double dx = ball2.x - ball1.x;
+            double dy = ball2.y - ball1.y;
+            double radii = ball1.radius + ball2.radius;
+            if (dx * dx + dy * dy < radii * radii) {
+                collide(ball1, ball2);
+            }
+        }
+
+        // Resolve contacts with obstacles last, so that balls don't get pushed into them.
+        // A ball moved back across a segment can land on another one, so check again after that.
+        for (int pass = 0; pass < MAX_CONTACT_PASSES; pass++) {
+            contacts.clear();
+            root.findObstacleContacts(contacts);
+            contacts.sort();
+            boolean crossed = false;
+            for (int i = 0; i < contacts.size(); i++) {
+                crossed |= bounce(ballsById[contacts.getFirst(i)], obstaclesById[contacts.getSecond(i)]);
+            }
+            if (!crossed) {
+                break;
+            }
+        }
+        simTimer.stop();
+
+        // Apply long-range and global forces
+        forceTimer.start();
+        for(ForceField field : forceFields){
+            field.apply(this);
+        }
+        forceTimer.stop();
+
+        stepCount++;
+    }
+
+    /**
+     * Sets new velocites and positions for the collsion of two balls.
+     * 
+     * @param ball1 First ball in collision
+     * @param ball2 Second ball in collision
+     */
+    private void collide(Ball ball1, Ball ball2) {
+        ParticleType type1 = types.get(ball1.type);
+        ParticleType type2 = types.get(ball2.type);
+        double m1 = type1.getMass(ball1.radius);
+        double m2 = type2.getMass(ball2.radius);
+
+        // Distance between x & y
+        double dx = ball2.x - ball1.x;
+        double dy = ball2.y - ball1.y;
+
+        // Direction of axis of collision. Dividing by the distance gives the same
+        // sin and cos as atan2, but only uses sqrt, which is exactly rounded on
+        // every platform (unlike the trigonometric functions).
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double sin = distance == 0 ? 0 : dy / distance;
+        double cos = distance == 0 ? 1 : dx / distance;
+
+        // Rotated positions on collision axis
+        double x1 = 0, y1 = 0;
+        double x2 = dx * cos + dy * sin;
+        double y2 = dy * cos - dx * sin;
+
+        // Rotated velocities on collision axis
+        double vx1 = ball1.vx * cos + ball1.vy * sin;
+        double vy1 = ball1.vy * cos - ball1.vx * sin;
+        double vx2 = ball2.vx * cos + ball2.vy * sin;
+        double vy2 = ball2.vy * cos - ball2.vx * sin;
+
+        // Only change velocities if the balls are moving towards each other
+        if (vx1 > vx2) {
+            // Final velocities on 1D axis of collision (collision formula with restitution,
+            // the less bouncy of the two types is used, so an inelastic type damps every impact)
+            double e = Math.min(type1.getRestitution(), type2.getRestitution());
+            double momentum = m1 * vx1 + m2 * vx2;
+            double vx1f = (momentum + m2 * e * (vx2 - vx1)) / (m1 + m2);
+            double vx2f = (momentum + m1 * e * (vx1 - vx2)) / (m1 + m2);
+            vx1 = vx1f;
+            vx2 = vx2f;
+
+            // Friction slows down the sliding of the balls past each other, keeping momentum
+            // (the rougher of the two types is used, so a frictionless type can't cancel it)
+            double friction = Math.max(type1.getFriction(), type2.getFriction());
+            double vyCenter = (m1 * vy1 + m2 * vy2) / (m1 + m2);
+            vy1 = vyCenter + (vy1 - vyCenter) * (1 - friction);
+            vy2 = vyCenter + (vy2 - vyCenter) * (1 - friction);
+        }
+
+        // Move balls apart so that they don't overlap. The lighter ball moves further,
+        // which keeps small balls from pushing very large ones around.
+        double overlap = (ball1.radius + ball2.radius) - Math.abs(x1 - x2);
+        x1 -= overlap * m2 / (m1 + m2);
+        x2 += overlap * m1 / (m1 + m2);
+
+        // Rotate positions back
+        double x1f = x1 * cos - y1 * sin;
+        double y1f = y1 * cos + x1 * sin;
+        double x2f = x2 * cos - y2 * sin;
+        double y2f = y2 * cos + x2 * sin;
+
+        // Set final position
+        ball2.x = ball1.x + x2f;
+        ball2.y = ball1.y + y2f;
+        ball1.x = ball1.x + x1f;
+        ball1.y = ball1.y + y1f;
+
+        // Set velocites at original angles
+        ball1.vx = vx1 * cos - vy1 * sin;
+        ball1.vy = vy1 * cos + vx1 * sin;
+        ball2.vx = vx2 * cos - vy2 * sin;
+        ball2.vy = vy2 * cos + vx2 * sin;
+    }
+
+    /**
+     * Keeps a ball inside of the world. A ball moving into a wall bounces off of it
+     * with its type's restitution and friction, the same as off of a segment
+     * (a ball in a corner hits both walls).
+     * 
+     * @param ball Ball to check against the walls
+     */
+    private void bounceOffWalls(Ball ball) {
+        ParticleType type = types.get(ball.type);
+        if(ball.x - ball.radius <= 0){
+            ball.x = 0 + ball.radius;
+            if (ball.vx < 0) {
+                ball.vx = -ball.vx * type.getRestitution();
+                ball.vy *= 1 - type.getFriction();
+            }
+        }  
+        else if (ball.x + ball.radius >= WORLD_SIZE){
+            ball.x = WORLD_SIZE - ball.radius;
+            if (ball.vx > 0) {
+                ball.vx = -ball.vx * type.getRestitution();
+                ball.vy *= 1 - type.getFriction();
+            }
+        }
+        if(ball.y - ball.radius <= 0){
+            ball.y = 0 + ball.radius;
+            if (ball.vy < 0) {
+                ball.vy = -ball.vy * type.getRestitution();
+                ball.vx *= 1 - type.getFriction();
+            }
+        } 
+        else if(ball.y + ball.radius >= WORLD_SIZE){
+            ball.y = WORLD_SIZE - ball.radius;
+            if (ball.vy > 0) {
+                ball.vy = -ball.vy * type.getRestitution();
+                ball.vx *= 1 - type.getFriction();
+            }
+        }
+    }
+
+    /**
+     * Bounces a ball off of a segment, if they still touch. If the ball's centre
+     * crossed the segment during the step, it is moved back to the side it
+     * started on, so that it can't end up inside of a closed shape.
+     * 
+     * @param ball Ball that touches or crossed the segment
+     * @param segment Segment that the ball touches
+     * @return True if the ball had crossed the segment
+     */
+    private boolean bounce(Ball ball, Segment segment) {
+        double startSide = segment.side(ball.startX, ball.startY);
+        boolean crossed = startSide != 0 && (startSide > 0) != (segment.side(ball.x, ball.y) > 0)
+                && segment.intersectsLine(ball.startX, ball.startY, ball.x, ball.y);
+        segment.closestPoint(ball.x, ball.y, closest);
+        double nx = ball.x - closest[0];
+        double ny = ball.y - closest[1];
+        double distance = Math.sqrt(nx * nx + ny * ny);
+        if (!crossed && distance >= ball.radius) {
+            return false;
+        }
+
+        // Normal pointing from the segment to the side the ball should be on
+        if (distance > 0) {
+            nx /= distance;
+            ny /= distance;
+            if (crossed) {
+                // The centre is on the wrong side, so the ball is deeper than its radius
+                nx = -nx;
+                ny = -ny;
+                distance = -distance;
+            }
+        } else {
+            // Centre is on the segment, so push out perpendicular to it (towards where it started)
+            nx = segment.y1 - segment.y2;
+            ny = segment.x2 - segment.x1;
+            double length = Math.sqrt(nx * nx + ny * ny);
+            nx = length == 0 ? 1 : nx / length;
+            ny = length == 0 ? 0 : ny / length;
+            if (startSide < 0) {
+                nx = -nx;
+                ny = -ny;
+            }
+        }
+
+        // Move the ball out of the segment
+        double overlap = ball.radius - distance;
+        ball.x += nx * overlap;
+        ball.y += ny * overlap;
+
+        // Reflect the velocity if the ball is moving into the segment
+        double vn = ball.vx * nx + ball.vy * ny;
+        if (vn < 0) {
+            ParticleType type = types.get(ball.type);
+            double vtx = ball.vx - vn * nx;
+            double vty = ball.vy - vn * ny;
+            vn = -vn * type.getRestitution();
+            ball.vx = vtx * (1 - type.getFriction()) + vn * nx;
+            ball.vy = vty * (1 - type.getFriction()) + vn * ny;
+        }
+        return crossed;
+    }
+
+    /**
+     * Checks if a ball touches any of the static segments.
+     * 
+     * @param ball Ball to check
+     * @return True if the ball touches a segment
+     */
+    private boolean touchesObstacle(Ball ball) {
+        for (Segment segment : obstacleList) {
+            if (segment.ptSegDistSq(ball.x, ball.y) <= ball.radius * ball.radius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a point is inside of one of the closed shapes (boxes and polygons)
+     * of the scene.
+     * 
+     * @param x X coordinate of the point
+     * @param y Y coordinate of the point
+     * @return True if the point is inside of a closed shape
+     */
+    public boolean isInsideObstacle(double x, double y) {
+        // The sides of a shape have consecutive ids, so each shape is finished before the next
+        int shape = -1;
+        boolean inside = false;
+        for (Segment segment : obstacleList) {
+            if (segment.shape != shape) {
+                if (inside) {
+                    return true;
+                }
+                shape = segment.shape;
+            }
+            if (shape >= 0 && segment.crossesRay(x, y)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Computes a hash of the position and velocity of every ball. Two runs are in
+     * the same state (bit for bit) if their hashes match, so a faster or parallel
+     * version of step() can be checked against this one after every step.
+     * 
+     * @return 64-bit hash of the state
+     */
+    public long stateHash() {
+        long hash = 0xcbf29ce484222325L; // FNV offset basis
+        for (Ball ball : ballList) {
+            hash = mix(hash, ball.id);
+            hash = mix(hash, Double.doubleToLongBits(ball.x));
+            hash = mix(hash, Double.doubleToLongBits(ball.y));
+            hash = mix(hash, Double.doubleToLongBits(ball.vx));
+            hash = mix(hash, Double.doubleToLongBits(ball.vy));
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes a value into a hash.
+     * 
+     * @param hash Hash so far
+     * @param value Value to add
+     * @return New hash
+     */
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Gets the table of particle types.
+     * 
+     * @return Particle types
+     */
+    public ParticleTypeTable getTypes() {
+        return types;
+    }
+
+    /**
+     * Gets the list of balls, in order of id.
+     * 
+     * @return List of balls
+     */
+    public SingleLinkedList<Ball> getBallList() {
+        return ballList;
+    }
+
+    /**
+     * Gets the static segments of the scene.
+     * 
+     * @return List of obstacles
+     */
+    public SingleLinkedList<Segment> getObstacleList() {
+        return obstacleList;
+    }
+
+    /**
+     * Gets the root of the QuadTree.
+     * 
+     * @return Root QuadTree
+     */
+    public QuadTree getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the force fields applied each step. Fields can be added and removed
+     * from the list by the thread that steps the simulation (other threads should
+     * use requestToggle()).
+     * 
+     * @return List of force fields
+     */
+    public SingleLinkedList<ForceField> getForceFields() {
+        return forceFields;
+    }
+
+    /**
+     * Gets the number of steps taken so far.
+     * 
+     * @return Step count
+     */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Gets the timer of the movement and collision part of the step.
+     * 
+     * @return Simulation timer
+     */
+    public PhaseTimer getSimTimer() {
+        return simTimer;
+    }
+
+    /**
+     * Gets the timer of the force field part of the step.
+     * 
+     * @return Force timer
+     */
+    public PhaseTimer getForceTimer() {
+        return forceTimer;
+    }
+}
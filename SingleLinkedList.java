@@ -113,6 +113,7 @@ public class SingleLinkedList<T> implements Iterable<T> {
         }
         if(head.getItem().equals(item)){
             head = head.getNext();
+            size--;
             return true;
         }
         while (!checkNode.getItem().equals(item)) {
@@ -0,0 +1,98 @@
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+
+/**
+ * A QuadTree of the static segments in a scene. Since segments never move,
+ * the tree is built once, and is then only queried for the segments near
+ * an area.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class StaticTree {
+
+    public static final int MAX_DEPTH = 6;
+    public static final int THRESHOLD = 4;
+    private StaticTree[] children; // 0 - top left, 1 - top right, 2 - bot left, 3 - bot right
+    private SingleLinkedList<Segment> segmentList;
+    private Rectangle boundingBox;
+
+    /**
+     * Builds a tree of segments. Segments that cross into more than one child are
+     * added to each of them.
+     * 
+     * @param boundingBox Rectangle with the bounds of the tree
+     * @param segments Segments to add (those outside the bounds are ignored)
+     */
+    public StaticTree(Rectangle boundingBox, SingleLinkedList<Segment> segments) {
+        this(boundingBox, segments, 0);
+    }
+
+    /**
+     * Builds a subtree of segments.
+     * 
+     * @param boundingBox Rectangle with the bounds of the tree
+     * @param segments Segments to add (those outside the bounds are ignored)
+     * @param depth How many layers deep from the root tree
+     */
+    private StaticTree(Rectangle boundingBox, SingleLinkedList<Segment> segments, int depth) {
+        this.boundingBox = boundingBox;
+        this.children = new StaticTree[4];
+        this.segmentList = new SingleLinkedList<Segment>();
+        for (Segment segment : segments) {
+            if (segment.intersects(boundingBox)) {
+                segmentList.add(segment);
+            }
+        }
+
+        if (segmentList.size() > THRESHOLD && depth < MAX_DEPTH) {
+            int halfWidth = boundingBox.width / 2;
+            int halfHeight = boundingBox.height / 2;
+            children[0] = new StaticTree(new Rectangle(boundingBox.x, boundingBox.y,
+                    halfWidth, halfHeight), segmentList, depth + 1);
+            children[1] = new StaticTree(new Rectangle(boundingBox.x + halfWidth, boundingBox.y,
+                    boundingBox.width - halfWidth, halfHeight), segmentList, depth + 1);
+            children[2] = new StaticTree(new Rectangle(boundingBox.x, boundingBox.y + halfHeight,
+                    halfWidth, boundingBox.height - halfHeight), segmentList, depth + 1);
+            children[3] = new StaticTree(new Rectangle(boundingBox.x + halfWidth, boundingBox.y + halfHeight,
+                    boundingBox.width - halfWidth, boundingBox.height - halfHeight), segmentList, depth + 1);
+            segmentList.clear(); // Only the leaves keep their segments
+        }
+    }
+
+    /**
+     * Finds the segments that cross an area. A segment that crosses several
+     * leaves is added once for each of them, so the result can hold duplicates
+     * (contacts found with them are removed when the contacts are sorted).
+     * 
+     * @param area Area to search
+     * @param result List that the segments are added to
+     */
+    public void query(Rectangle2D area, ArrayList<Segment> result) {
+        if (!boundingBox.intersects(area)) {
+            return;
+        }
+        if (isLeaf()) {
+            for (Segment segment : segmentList) {
+                if (segment.intersects(area)) {
+                    result.add(segment);
+                }
+            }
+        }
+        else {
+            for (StaticTree child : children) {
+                child.query(area, result);
+            }
+        }
+    }
+
+    /**
+     * Return whether the tree is a leaf (no children).
+     * 
+     * @return True if the StaticTree is a leaf (No children)
+     */
+    public boolean isLeaf() {
+        return children[0] == null;
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * A set of headless runs to compare, read from a text file. Each line sets
+ * one parameter to a comma separated list of values, and every combination
+ * of values is run:
+ * <pre>
+ * # a comment
+ * balls = 500, 1000, 2000
+ * threshold = 3, 5, 8
+ * maxDepth = 4, 5, 6
+ * radius = 8-15, 3-6
+ * steps = 500
+ * repeats = 3
+ * seed = 1
+ * scene = scenes/funnel.txt
+ * </pre>
+ * Parameters that are left out use the defaults of the interactive program.
+ * Each repeat uses a different seed (seed, seed + 1, ...), and the same seeds
+ * are used for every combination so that they start from comparable states.
+ *
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class SweepDefinition {
+
+    private int[] ballCounts = {1000};
+    private int[] thresholds = {QuadTree.THRESHOLD};
+    private int[] maxDepths = {QuadTree.MAX_DEPTH};
+    private int[][] radiusRanges = {{8, 15}};
+    private int steps = 500;
+    private int repeats = 1;
+    private long seed = 1;
+    private String scene = null;
+
+    /**
+     * Loads a sweep definition file.
+     *
+     * @param path Path of the sweep file
+     * @return The sweep definition
+     * @throws IOException If the file can't be read
+     * @throws IllegalArgumentException If a line of the file isn't a valid parameter
+     */
+    public static SweepDefinition load(String path) throws IOException {
+        SweepDefinition sweep = new SweepDefinition();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    sweep.parseParameter(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return sweep;
+    }
+
+    /**
+     * Parses one "name = values" line.
+     *
+     * @param line Line of the sweep file
+     */
+    private void parseParameter(String line) {
+        int equals = line.indexOf('=');
+        if (equals < 0) {
+            throw new IllegalArgumentException("expected \"name = values\"");
+        }
+        String name = line.substring(0, equals).trim();
+        String[] values = line.substring(equals + 1).split(",");
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+
+        switch (name) {
+            case "balls":
+                ballCounts = parseInts(values, 1);
+                break;
+            case "threshold":
+                thresholds = parseInts(values, 1);
+                break;
+            case "maxDepth":
+                maxDepths = parseInts(values, 0);
+                break;
+            case "radius":
+                radiusRanges = new int[values.length][];
+                for (int i = 0; i < values.length; i++) {
+                    // "min-max", or a single radius
+                    String[] bounds = values[i].split("-");
+                    int min = Integer.parseInt(bounds[0].trim());
+                    int max = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : min;
+                    if (bounds.length > 2 || min < 1 || max < min || max * 2 > Simulation.WORLD_SIZE) {
+                        throw new IllegalArgumentException("bad radius range \"" + values[i] + "\"");
+                    }
+                    radiusRanges[i] = new int[] {min, max};
+                }
+                break;
+            case "steps":
+                steps = parseInts(single(name, values), 1)[0];
+                break;
+            case "repeats":
+                repeats = parseInts(single(name, values), 1)[0];
+                break;
+            case "seed":
+                seed = Long.parseLong(single(name, values)[0]);
+                break;
+            case "scene":
+                scene = single(name, values)[0];
+                break;
+            default:
+                throw new IllegalArgumentException("unknown parameter \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Checks that a parameter that is the same for every run has only one value.
+     *
+     * @param name Name of the parameter
+     * @param values Values of the parameter
+     * @return The values
+     */
+    private static String[] single(String name, String[] values) {
+        if (values.length != 1) {
+            throw new IllegalArgumentException(name + " takes a single value");
+        }
+        return values;
+    }
+
+    /**
+     * Parses a list of whole numbers that can't be below a minimum.
+     *
+     * @param values Text of the numbers
+     * @param min Smallest allowed number
+     * @return The numbers
+     */
+    private static int[] parseInts(String[] values, int min) {
+        int[] numbers = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            numbers[i] = Integer.parseInt(values[i]); // NumberFormatException is an IllegalArgumentException
+            if (numbers[i] < min) {
+                throw new IllegalArgumentException("value " + numbers[i] + " is below " + min);
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Lists every run of the sweep, grouped by configuration.
+     *
+     * @return List of runs
+     */
+    public SingleLinkedList<Run> getRuns() {
+        SingleLinkedList<Run> runs = new SingleLinkedList<Run>();
+        for (int balls : ballCounts) {
+            for (int threshold : thresholds) {
+                for (int maxDepth : maxDepths) {
+                    for (int[] radius : radiusRanges) {
+                        for (int repeat = 0; repeat < repeats; repeat++) {
+                            runs.add(new Run(balls, threshold, maxDepth, radius[0], radius[1],
+                                    steps, seed + repeat));
+                        }
+                    }
+                }
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Gets the scene file shared by every run.
+     *
+     * @return Path of the scene file, or null if the runs have no obstacles
+     */
+    public String getScene() {
+        return scene;
+    }
+
+    /**
+     * The parameters of a single headless run.
+     *
+     * @version 1.0
+     * @author Sunny Jiao
+     */
+    public static class Run {
+
+        public final int balls;
+        public final int threshold;
+        public final int maxDepth;
+        public final int minRadius, maxRadius;
+        public final int steps;
+        public final long seed;
+
+        /**
+         * Creates the parameters of a run.
+         *
+         * @param balls Number of balls
+         * @param threshold Number of balls needed to subdivide a tree
+         * @param maxDepth Deepest layer of the QuadTree that is still subdivided
+         * @param minRadius Smallest radius of a ball
+         * @param maxRadius Largest radius of a ball
+         * @param steps Number of steps to simulate
+         * @param seed Seed of the random number generator
+         */
+        public Run(int balls, int threshold, int maxDepth, int minRadius, int maxRadius,
+                int steps, long seed) {
+            this.balls = balls;
+            this.threshold = threshold;
+            this.maxDepth = maxDepth;
+            this.minRadius = minRadius;
+            this.maxRadius = maxRadius;
+            this.steps = steps;
+            this.seed = seed;
+        }
+
+        /**
+         * Gets a name for the configuration of the run, which is the same for
+         * every repeat.
+         *
+         * @return Name of the configuration
+         */
+        public String getConfiguration() {
+            return "balls=" + balls + " threshold=" + threshold + " maxDepth=" + maxDepth
+                    + " radius=" + minRadius + "-" + maxRadius;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * A force field that accelerates every ball by the same amount in the same
+ * direction.
+ * 
+ * @version 1.0
+ * @author Sunny Jiao
+ */
+public class UniformGravity implements ForceField {
+
+    private double ax, ay;
+
+    /**
+     * Creates a uniform gravity field.
+     * 
+     * @param ax Acceleration along x per step
+     * @param ay Acceleration along y per step
+     */
+    public UniformGravity(double ax, double ay) {
+        this.ax = ax;
+        this.ay = ay;
+    }
+
+    /**
+     * Accelerates all balls.
+     * 
+     * @param simulation Simulation containing the balls
+     */
+    public void apply(Simulation simulation) {
+        for (Ball ball : simulation.getBallList()) {
+            ball.vx += ax;
+            ball.vy += ay;
+        }
+    }
+}